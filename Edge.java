@@ -9,12 +9,12 @@ package gps;
 
 public class Edge {
 	
-	private int startID; 		// ID of start Vertex
-	private int endID;			// ID of end Vertex
+	private int startID; 		// Index of start Vertex (its ID, in an update passed to GPSGraph.updateEdgeWeights())
+	private int endID;			// Index of end Vertex (its ID, in an update passed to GPSGraph.updateEdgeWeights())
 	private double weight; 		// Path weight
 
 	
-	public Edge(int start, int end, int w) {
+	public Edge(int start, int end, double w) {
 		startID = start;
 		endID = end;
 		weight = w;
@@ -0,0 +1,52 @@
+/**
+ * FacilityAssignment
+ * Dylan Kario
+ *
+ * This class holds the result of GPSGraph's nearestFacility(): the nearest depot of every city and its distance from
+ * that depot, as of a given graph version. Both arrays are indexed by original city ID.
+ */
+
+package gps;
+
+public class FacilityAssignment {
+
+	private long version; 		// Graph version this assignment reflects
+	private int[] nearest; 		// ID of each city's nearest depot, by city ID (-1 if no depot reaches it)
+	private double[] dist; 		// Distance from each city's nearest depot, by city ID (infinity if no depot reaches it)
+
+
+	FacilityAssignment(long v, int[] n, double[] d) {
+		version = v;
+		nearest = n;
+		dist = d;
+	}
+
+
+	/* Getters */
+
+	public long getVersion() {
+		return version;
+	}
+
+	public int getNearest(int id) {
+		return nearest[id];
+	}
+
+	public double getDistance(int id) {
+		return dist[id];
+	}
+
+	/**
+	 * nearest: the whole array of nearest depot IDs, indexed by city ID
+	 */
+	public int[] nearest() {
+		return nearest;
+	}
+
+	/**
+	 * distances: the whole array of distances from the nearest depot, indexed by city ID
+	 */
+	public double[] distances() {
+		return dist;
+	}
+}
@@ -8,23 +8,56 @@
 
 package gps;
 import java.util.*;
+import java.util.concurrent.locks.*;
+import java.util.function.*;
 import java.io.*;
 
 public class GPSGraph {
 
 	private Hashtable<Integer, Vertex> lookup_vertex; 		// Lookup list for all Vertices <ID #, Vertex>
 	private Hashtable<Integer, ArrayList<Edge>> graphData; 	// Adjacency list <ID, Edge list>
+	private Hashtable<Integer, ArrayList<Edge>> reverseData; 	// Incoming Edges <ID, Edge list>; shares Edges with graphData
 	private ArrayList<String> fileTitles; 					// Names of all files that have been loaded in current session
 	private int size; 										// # of cities: first line of citiesFile
 	private int curID; 										// ID for city currently set by the user
+	private int[] toIndex; 									// Original ID -> lookup/adjacency index; null until reordered
+	private int[] toID; 									// Lookup/adjacency index -> original ID; null until reordered
+	private volatile long version; 							// Bumped on every change to cities, edges or their weights
+	private Map<Integer, ShortestPathTree> treeCache; 		// Edge-weight shortest path trees for hot origins <index, tree>
+	private int[] component; 								// Strongly connected component of each Vertex, by index
+	private BitSet[] reachableComponents; 					// Components reachable from each component, including itself
+	private ReentrantReadWriteLock graphLock; 				// Readers share the graph; edge changes are exclusive
+
+	private static final int MAX_CACHED_TREES = 16; 		// # of origins whose trees are kept and repaired
+
+	/* Orders lazy heap entries {distance, ID} by distance, for the array-based searches */
+	private static final Comparator<double[]> BY_DISTANCE = new Comparator<double[]>() {
+		public int compare(double[] a, double[] b) {
+			return Double.compare(a[0], b[0]);
+		}
+	};
 
 	
 	public GPSGraph() {
 		lookup_vertex =  new Hashtable<Integer, Vertex>();
 		graphData = new Hashtable<Integer, ArrayList<Edge>>();
+		reverseData = new Hashtable<Integer, ArrayList<Edge>>();
 		fileTitles = new ArrayList<String>();
 		size = 0;
 		curID = -1; 			// -1 is indicator that user has not yet chosen a valid value for curID
+		toIndex = null;
+		toID = null;
+		component = null;
+		reachableComponents = null;
+		version = 0;
+		graphLock = new ReentrantReadWriteLock();
+		
+		/* Access-ordered so that the least recently used origin is dropped once the cache is full */
+		treeCache = Collections.synchronizedMap(new LinkedHashMap<Integer, ShortestPathTree>(MAX_CACHED_TREES, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<Integer, ShortestPathTree> eldest) {
+				return size() > MAX_CACHED_TREES;
+			}
+		});
 	}
 	
 	
@@ -42,6 +75,7 @@ public class GPSGraph {
 		else {
 			File citiesFile = new File(filename);
 			
+			lockForWrite(); 	// Searches must not see size grow before the new Vertices exist
 			try {
 				BufferedReader br = new BufferedReader(new FileReader(citiesFile));
 				int newID; 						// Incrementing custom ID for each new city
@@ -88,21 +122,66 @@ public class GPSGraph {
 				System.out.println("Invalid filename. Returning to main menu.");
 			} catch (IOException e) {
 				e.printStackTrace();
+			} finally {
+				addEmptyRows(); 		// Keep the adjacency list covering every city, until makeAdjList() is called again
+				version++;
+				graphLock.writeLock().unlock();
 			}
 		}
 		
 	}
 
 	
+	/**
+	 * addEmptyRows: gives cities loaded since the adjacency list was built empty rows of Edges, so that searches can
+	 * reach them without tripping over missing rows; caller must hold the write lock
+	 */
+	private void addEmptyRows() {
+		if (graphData.isEmpty())
+			return; 		// No adjacency list yet
+		
+		boolean added = false;
+		for (int i=0; i<size; i++) {
+			if (!graphData.containsKey(i)) {
+				graphData.put(i, new ArrayList<Edge>());
+				reverseData.put(i, new ArrayList<Edge>());
+				added = true;
+			}
+		}
+		
+		/* Cached trees and the component index are sized for the old number of cities */
+		if (added) {
+			treeCache.clear();
+			buildComponents();
+		}
+	}
+	
+	
 	/**
 	 * makeAdjList: Generates an adjacency list from the Vertices obtained from parse(); for each vertex, generate
 	 * direct Edges from it to 2-8 randomly chosen other Vertices (cities), each with a random weight between 100-2000  
 	 */
 	public void makeAdjList() {
+		lockForWrite();
+		try {
+			buildAdjList();
+		} finally {
+			graphLock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * buildAdjList: body of makeAdjList(); caller must hold the write lock
+	 */
+	private void buildAdjList() {
 		
 		/* If a current adjacency list exists, this step clears its data and reconstructs a new one. See readme for rationale. */
 		if (!graphData.isEmpty())
 			clearAdjList();
+		
+		/* Create a row of incoming Edges for each Vertex up front, since an Edge may point to a later Vertex */
+		for (int i=0; i<size; i++)
+			reverseData.put(i, new ArrayList<Edge>());
 
 		
 		/* Generate random connections between cities */
@@ -123,10 +202,12 @@ public class GPSGraph {
 				} while (randID == i || hasEdge(graphData.get(i), randID));
 				
 				randWeight = 100 + r.nextInt(1901); 	// Weight for this edge, randomly between 100-2000
-				addEdge(i, randID, randWeight); 	// Add edge from i to randID with randWeight	
+				insertEdge(i, randID, randWeight); 	// Add edge from i to randID with randWeight	
 			}
 
 		}
+		buildComponents(); 		// Index which cities can reach which, for shortestPath()
+		version++;
 	}
 
 	
@@ -187,7 +268,7 @@ public class GPSGraph {
 			curID = r.nextInt(size);
 			System.out.println("[randomly determined]");
 		}	
-		System.out.println(lookup_vertex.get(curID).toString());
+		System.out.println(lookup_vertex.get(indexOf(curID)).toString());
 	}
 	
 	
@@ -200,7 +281,21 @@ public class GPSGraph {
 	 */
 	public PriorityQueue<Vertex> dijkstra(int startID, boolean gpsMode) {
 		
-		Vertex start = lookup_vertex.get(startID);
+		/* Exclusive, since the results are written into the shared Vertices; callers should read them before the next call */
+		lockForWrite();
+		try {
+			return runDijkstra(indexOf(startID), gpsMode);
+		} finally {
+			graphLock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * runDijkstra: body of dijkstra(), starting from an index rather than an ID; caller must hold the write lock
+	 */
+	private PriorityQueue<Vertex> runDijkstra(int startIndex, boolean gpsMode) {
+		
+		Vertex start = lookup_vertex.get(startIndex);
 		PriorityQueue<Vertex> tempHeap = new PriorityQueue<Vertex>(size); 	// Inserts all Vertices for easy min finding
 		PriorityQueue<Vertex> heap = new PriorityQueue<Vertex>(size); 	// To be returned for use in other methods
 		
@@ -218,17 +313,12 @@ public class GPSGraph {
 			start = tempHeap.poll(); 	// Gets next shortest Vertex from old instance of start, beginning with the original arg
 			
 			/* Iterates over each edge that the currently analyzed Vertex has coming out of it */
-			for (Edge e : graphData.get(start.getID())) {
+			for (Edge e : graphData.get(start.getIndex())) {
 
 				Vertex startV = lookup_vertex.get(e.getStart()); 	// Represents the Vertex being evaluated (start of Edge)
 				Vertex endV = lookup_vertex.get(e.getEnd());		// Represents Vertex at end of Edge
 				
-				double weight; 	// Distance 
-				if (gpsMode)
-					weight = haversine(startV, endV); 				// GPS distance
-				else
-					weight = e.getWeight(); 						// Weight of this Edge
-
+				double weight = cost(e, gpsMode); 		// Distance 
 				double curDist = startV.getDistance() + weight;  	// Distance to endV via startV
 				
 				/* A shorter distance has been found that spans 2 edges */
@@ -238,7 +328,7 @@ public class GPSGraph {
 					tempHeap.remove(endV); 		// Runs in O(log |V|) since not necessarily the minimum
 					endV.setDistance(curDist);
 					tempHeap.add(endV);
-					endV.setPath(start.getID());
+					endV.setPath(start.getID()); 	// Reported to callers, so store the ID rather than the index
 				}
 			}
 
@@ -253,6 +343,114 @@ public class GPSGraph {
 	}
 
 
+	/**
+	 * reachableWithin: finds every city whose shortest distance from the start city is within the budget, handing each
+	 * one to the consumer as soon as it is settled, nearest first. The search stops at the budget, so its cost depends
+	 * only on the size of the region reached (see readme for details).
+	 * @param startID the start city
+	 * @param budget the largest distance to accept, in miles or edge weight units
+	 * @param gpsMode false when calculating distances from edge weights; true when calculating GPS distances with haversine
+	 * @param consumer receives each reachable Vertex along with its distance from the start city; it is called while
+	 * the graph is held for reading, so it must not change the graph (doing so throws IllegalStateException)
+	 * @return the number of cities reached, including the start city
+	 */
+	public int reachableWithin(int startID, double budget, boolean gpsMode, ObjDoubleConsumer<Vertex> consumer) {
+		if (Double.isNaN(budget))
+			throw new IllegalArgumentException("Budget must be a number");
+		
+		graphLock.readLock().lock();
+		try {
+			HashMap<Integer, Double> best = new HashMap<Integer, Double>(); 	// Only holds Vertices seen so far
+			PriorityQueue<double[]> heap = new PriorityQueue<double[]>(16, BY_DISTANCE);
+			int count = 0;
+			
+			if (budget < 0)
+				return 0;
+			int startIndex = indexOf(startID);
+			best.put(startIndex, 0.0);
+			heap.add(new double[] {0, startIndex});
+			
+			while (!heap.isEmpty()) {
+				double[] top = heap.poll();
+				int id = (int)top[1];
+				if (top[0] > best.get(id))
+					continue; 		// Already settled with a shorter distance
+				
+				consumer.accept(lookup_vertex.get(id), top[0]);
+				count++;
+				
+				for (Edge e : graphData.get(id)) {
+					double curDist = top[0] + cost(e, gpsMode);
+					Double known = best.get(e.getEnd());
+					
+					/* Cities past the budget are never queued, which is what bounds the search */
+					if (curDist <= budget && (known == null || curDist < known)) {
+						best.put(e.getEnd(), curDist);
+						heap.add(new double[] {curDist, e.getEnd()});
+					}
+				}
+			}
+			return count;
+		} finally {
+			graphLock.readLock().unlock();
+		}
+	}
+	
+	
+	/**
+	 * nearestFacility: assigns every city to its nearest depot in a single search, by starting Dijkstra's algorithm
+	 * from all depots at once at distance 0 (see readme for details)
+	 * @param depotIDs IDs of the depot cities
+	 * @param gpsMode false when calculating distances from edge weights; true when calculating GPS distances with haversine
+	 * @return each city's nearest depot ID and distance from it, as arrays indexed by city ID
+	 */
+	public FacilityAssignment nearestFacility(int[] depotIDs, boolean gpsMode) {
+		graphLock.readLock().lock();
+		try {
+			double[] dist = new double[size];
+			int[] source = new int[size];
+			Arrays.fill(dist, Double.POSITIVE_INFINITY);
+			Arrays.fill(source, -1);
+			
+			/* Seed every depot; a depot listed twice is only seeded once */
+			PriorityQueue<double[]> heap = new PriorityQueue<double[]>(Math.max(1, depotIDs.length), BY_DISTANCE);
+			for (int id : depotIDs) {
+				int index = indexOf(id);
+				if (dist[index] != 0) {
+					dist[index] = 0;
+					source[index] = id;
+					heap.add(new double[] {0, index});
+				}
+			}
+			settle(heap, dist, null, source, gpsMode);
+			
+			/* Copy out by ID rather than by index */
+			int[] nearest = new int[size];
+			double[] distance = new double[size];
+			for (int i = 0; i < size; i++) {
+				int id = lookup_vertex.get(i).getID();
+				nearest[id] = source[i];
+				distance[id] = dist[i];
+			}
+			return new FacilityAssignment(version, nearest, distance);
+		} finally {
+			graphLock.readLock().unlock();
+		}
+	}
+	
+	
+	/**
+	 * cost: the length of an Edge in the given mode
+	 * @param e the Edge being traversed
+	 * @param gpsMode false for the Edge's weight; true for the GPS distance between its Vertices
+	 */
+	private double cost(Edge e, boolean gpsMode) {
+		if (gpsMode)
+			return haversine(lookup_vertex.get(e.getStart()), lookup_vertex.get(e.getEnd())); 	// GPS distance
+		return e.getWeight(); 																// Weight of this Edge
+	}
+
+
 	/**
 	 * haversine: helper function for dijkstra(); calculates GPS distance between 2 vertices (see readme for source) 
 	 * @param start beginning Vertex
@@ -284,15 +482,21 @@ public class GPSGraph {
 			curID = r.nextInt(size);
 		}
 		
-		System.out.println("Current city: #" + curID + " (" + lookup_vertex.get(curID).getCity() + ", " +
-				lookup_vertex.get(curID).getState() + ")");
-		
-		PriorityQueue<Vertex> heap = dijkstra(curID, gpsMode);
-		heap.poll(); 		// Calling poll() the first time returns the Vertex of startID, which we don't want to output
-		for (int i=0; i<n; i++) {
-			Vertex v = heap.poll(); 	// Gets the n closest cities
-			System.out.println("Closest city #" + (i+1) + ": " + v.getCity() + ", " + v.getState()
-					+ " (distance: " + (int)v.getDistance() + ")");
+		/* Hold the graph until the results have been read out of the Vertices */
+		lockForWrite();
+		try {
+			Vertex cur = lookup_vertex.get(indexOf(curID));
+			System.out.println("Current city: #" + curID + " (" + cur.getCity() + ", " + cur.getState() + ")");
+			
+			PriorityQueue<Vertex> heap = dijkstra(curID, gpsMode);
+			heap.poll(); 		// Calling poll() the first time returns the Vertex of startID, which we don't want to output
+			for (int i=0; i<n; i++) {
+				Vertex v = heap.poll(); 	// Gets the n closest cities
+				System.out.println("Closest city #" + (i+1) + ": " + v.getCity() + ", " + v.getState()
+						+ " (distance: " + (int)v.getDistance() + ")");
+			}
+		} finally {
+			graphLock.writeLock().unlock();
 		}
 	}
 	
@@ -308,34 +512,590 @@ public class GPSGraph {
 			curID = r.nextInt(size);
 		}		
 		
-		Vertex v = lookup_vertex.get(endID); 	// Get destination vertex
-		dijkstra(curID, false);				 	// Edge weight mode
-
-		/* Work backwards from destination, checking each path variable, until start Vertex is reached */
-		if (v.getPath() != 0) {
-			shortestPath(v.getPath());
-			System.out.println("...to...");
+		/* No route exists at all -- say so instead of searching the whole graph for one */
+		if (!isReachable(curID, endID)) {
+			System.out.println("There is no path from the current city to " + lookup_vertex.get(indexOf(endID)).getCity()
+					+ ", " + lookup_vertex.get(indexOf(endID)).getState() + ".");
+			return;
+		}
+		
+		/* Hold the graph until the results have been read out of the Vertices */
+		lockForWrite();
+		try {
+			Vertex v = lookup_vertex.get(indexOf(endID)); 	// Get destination vertex
+			dijkstra(curID, false);				 			// Edge weight mode
+	
+			/* Work backwards from destination, checking each path variable, until start Vertex is reached */
+			if (v.getPath() != 0) {
+				shortestPath(v.getPath());
+				System.out.println("...to...");
+			}
+			System.out.println(v.getCity() + ", " + v.getState() + " [distance so far: " + (int)v.getDistance() + "]");
+		} finally {
+			graphLock.writeLock().unlock();
 		}
-		System.out.println(v.getCity() + ", " + v.getState() + " [distance so far: " + (int)v.getDistance() + "]");
 	}
 	
 	
 	/**
-	 * addEdge adds an Edge between two Vertices, and updates the adjacency list (see readme for more details)
+	 * addEdge adds an Edge between two Vertices, and updates the adjacency list (see readme for more details).
+	 * Cached shortest path trees are repaired as if the new Edge's weight had dropped from infinity.
 	 * @param ID1 ID key in lookup_vertex of edge's start node
 	 * @param ID2 ID key in lookup_vertex of edge's end node
 	 * @param weight edge weight
 	 */
 	public void addEdge(int ID1, int ID2, int weight) {
+		lockForWrite();
+		try {
+			int from = indexOf(ID1);
+			int to = indexOf(ID2);
+			
+			/* If ID2 was already reachable from ID1, the new Edge cannot join components or add reachability */
+			boolean known = component != null && from < component.length && to < component.length
+					&& reachableComponents[component[from]].get(component[to]);
+			
+			Edge e = insertEdge(from, to, weight);
+			if (!known)
+				buildComponents();
+			version++;
+			
+			/* To the cached trees, a new Edge is an Edge whose weight dropped from infinity */
+			Map<Edge, Double> oldWeights = new LinkedHashMap<Edge, Double>();
+			oldWeights.put(e, Double.POSITIVE_INFINITY);
+			repairCachedTrees(oldWeights);
+		} finally {
+			graphLock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * insertEdge: body of addEdge(), taking indices rather than IDs; caller must hold the write lock
+	 * @return the new Edge
+	 */
+	private Edge insertEdge(int ID1, int ID2, double weight) {
 		
 		/* NOTE: since graphData only operates on existing Vertices gotten after calling parse(), addEdge()
 		 * will never be called with nonexistent Vertices as arguments -- therefore in this program, there is no need
 		 * to check whether the Vertices of ID1 and ID2 exist before adding an edge between them */
-		graphData.get(ID1).add(new Edge(ID1, ID2, weight)); 		// Adds new edge to the adjacency list
+		Edge e = new Edge(ID1, ID2, weight);
+		graphData.get(ID1).add(e); 		// Adds new edge to the adjacency list
+		reverseData.get(ID2).add(e); 	// Same Edge object, so weight updates are seen from both ends
 		
 		/* Update counts */
 		lookup_vertex.get(ID1).incOutCount();
 		lookup_vertex.get(ID2).incInCount();
+		return e;
+	}
+	
+	
+	/**
+	 * reorderByLocality: renumbers the Vertices along a Hilbert curve over their longitude and latitude, so that cities
+	 * that are neighbours on the map are also neighbours in the lookup table, the adjacency list, and the arrays used
+	 * by the searches (see readme for details). Original IDs are still what every public method accepts and reports.
+	 */
+	public void reorderByLocality() {
+		lockForWrite();
+		try {
+			if (size == 0)
+				return;
+			
+			/* Bounding box of all cities, so that the curve's grid covers exactly the loaded data */
+			double minLon = Double.POSITIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
+			double minLat = Double.POSITIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < size; i++) {
+				Vertex v = lookup_vertex.get(i);
+				minLon = Math.min(minLon, v.getLon());
+				maxLon = Math.max(maxLon, v.getLon());
+				minLat = Math.min(minLat, v.getLat());
+				maxLat = Math.max(maxLat, v.getLat());
+			}
+			
+			/* Sort by curve position; each key packs the position into the high bits and the old index into the low */
+			long[] keys = new long[size];
+			for (int i = 0; i < size; i++) {
+				Vertex v = lookup_vertex.get(i);
+				int x = gridCell(v.getLon(), minLon, maxLon);
+				int y = gridCell(v.getLat(), minLat, maxLat);
+				keys[i] = (hilbert(x, y) << 32) | i;
+			}
+			Arrays.sort(keys);
+			
+			int[] newIndex = new int[size]; 	// Old index -> new index
+			for (int i = 0; i < size; i++)
+				newIndex[(int)keys[i]] = i;
+			
+			/* Rebuild the lookup table and both edge lists in the new order */
+			Hashtable<Integer, Vertex> newLookup = new Hashtable<Integer, Vertex>();
+			Hashtable<Integer, ArrayList<Edge>> newGraphData = new Hashtable<Integer, ArrayList<Edge>>();
+			Hashtable<Integer, ArrayList<Edge>> newReverseData = new Hashtable<Integer, ArrayList<Edge>>();
+			toIndex = new int[size];
+			toID = new int[size];
+			
+			/* Fresh copies, allocated in curve order so that neighbouring cities also sit close together in memory */
+			for (int i = 0; i < size; i++) {
+				Vertex v = new Vertex(lookup_vertex.get((int)keys[i]), i);
+				newLookup.put(i, v);
+				toIndex[v.getID()] = i;
+				toID[i] = v.getID();
+				if (!graphData.isEmpty())
+					newReverseData.put(i, new ArrayList<Edge>());
+			}
+			
+			if (!graphData.isEmpty()) {
+				for (int i = 0; i < size; i++) {
+					ArrayList<Edge> row = new ArrayList<Edge>();
+					for (Edge e : graphData.get((int)keys[i])) {
+						Edge moved = new Edge(i, newIndex[e.getEnd()], e.getWeight());
+						row.add(moved);
+						newReverseData.get(moved.getEnd()).add(moved);
+					}
+					newGraphData.put(i, row);
+				}
+			}
+			
+			lookup_vertex = newLookup;
+			graphData = newGraphData;
+			reverseData = newReverseData;
+			treeCache.clear(); 		// Cached trees are indexed by the old numbering
+			buildComponents(); 		// So is the component index
+			version++;
+		} finally {
+			graphLock.writeLock().unlock();
+		}
+	}
+	
+	
+	/**
+	 * gridCell: scales a coordinate within [min, max] to a cell of the 32768 x 32768 grid used by hilbert()
+	 */
+	private static int gridCell(double value, double min, double max) {
+		if (max == min)
+			return 0;
+		return (int)((value - min) / (max - min) * 32767);
+	}
+	
+	
+	/**
+	 * hilbert: position of grid cell (x, y) along a Hilbert curve filling the 32768 x 32768 grid. Positions fit in
+	 * 30 bits, so reorderByLocality() can shift them into the high half of a long without reaching the sign bit.
+	 */
+	private static long hilbert(int x, int y) {
+		int n = 32768;
+		long d = 0;
+		for (int s = n/2; s > 0; s /= 2) {
+			int rx = (x & s) > 0 ? 1 : 0;
+			int ry = (y & s) > 0 ? 1 : 0;
+			d += (long)s * s * ((3 * rx) ^ ry);
+			
+			/* Rotate the quadrant so that the curve inside it runs the right way */
+			if (ry == 0) {
+				if (rx == 1) {
+					x = n-1 - x;
+					y = n-1 - y;
+				}
+				int t = x;
+				x = y;
+				y = t;
+			}
+		}
+		return d;
+	}
+	
+	
+	/**
+	 * lockForWrite: takes the write lock, failing instead of deadlocking if this thread is in the middle of a search
+	 * (for example, a reachableWithin() consumer), since a read lock cannot be upgraded to a write lock
+	 */
+	private void lockForWrite() {
+		if (graphLock.getReadHoldCount() > 0)
+			throw new IllegalStateException("The graph cannot be changed or searched exclusively from inside a search");
+		graphLock.writeLock().lock();
+	}
+	
+	
+	/**
+	 * indexOf: converts an original ID to its lookup/adjacency index
+	 */
+	private int indexOf(int id) {
+		return remap(toIndex, id);
+	}
+	
+	/**
+	 * remap: looks an ID or index up in a renumbering map; IDs past the end of the map (cities loaded after
+	 * reordering) and a null map (never reordered) are left unchanged. Shared with ShortestPathTree.
+	 */
+	static int remap(int[] map, int id) {
+		return (map == null || id < 0 || id >= map.length) ? id : map[id];
+	}
+	
+	
+	/**
+	 * buildComponents: splits the graph into strongly connected components with an iterative Tarjan's algorithm (no
+	 * recursion, so long chains of cities cannot overflow the call stack), then records which components can reach
+	 * which through the condensation DAG (see readme for details); caller must hold the write lock
+	 */
+	private void buildComponents() {
+		if (graphData.isEmpty()) {
+			component = null;
+			reachableComponents = null;
+			return;
+		}
+		
+		int[] comp = new int[size]; 		// Component of each index, or -1 while still on the Tarjan stack/unvisited
+		int[] num = new int[size]; 			// Visit order, starting at 1 (0 = not visited yet)
+		int[] low = new int[size]; 			// Lowest visit order reachable through the DFS subtree and back Edges
+		int[] tarjan = new int[size]; 		// Tarjan stack of visited Vertices not yet given a component
+		int[] call = new int[size]; 		// Explicit DFS call stack
+		int[] next = new int[size]; 		// Next Edge to try, for each entry of the call stack
+		int tsp = 0, csp = 0, counter = 0, count = 0;
+		Arrays.fill(comp, -1);
+		
+		for (int root = 0; root < size; root++) {
+			if (num[root] != 0)
+				continue;
+			num[root] = low[root] = ++counter;
+			tarjan[tsp++] = root;
+			call[csp] = root;
+			next[csp++] = 0;
+			
+			while (csp > 0) {
+				int v = call[csp-1];
+				ArrayList<Edge> edges = graphData.get(v);
+				
+				if (next[csp-1] < edges.size()) {
+					int w = edges.get(next[csp-1]++).getEnd();
+					if (num[w] == 0) { 					// Unvisited: descend into it
+						num[w] = low[w] = ++counter;
+						tarjan[tsp++] = w;
+						call[csp] = w;
+						next[csp++] = 0;
+					}
+					else if (comp[w] == -1) 			// Still on the Tarjan stack: part of the current component
+						low[v] = Math.min(low[v], num[w]);
+				}
+				else {
+					csp--;
+					
+					/* v is the root of a component: everything above it on the Tarjan stack belongs to it */
+					if (low[v] == num[v]) {
+						int w;
+						do {
+							w = tarjan[--tsp];
+							comp[w] = count;
+						} while (w != v);
+						count++;
+					}
+					if (csp > 0)
+						low[call[csp-1]] = Math.min(low[call[csp-1]], low[v]);
+				}
+			}
+		}
+		
+		/* Tarjan's algorithm finishes a component only after every component it points to, so numbering order is
+		 * already a reverse topological order of the condensation DAG: build each component's set from earlier ones */
+		int[] start = new int[count + 1]; 		// Vertices grouped by component, counting-sort style
+		int[] members = new int[size];
+		for (int i = 0; i < size; i++)
+			start[comp[i] + 1]++;
+		for (int c = 0; c < count; c++)
+			start[c + 1] += start[c];
+		int[] fill = start.clone();
+		for (int i = 0; i < size; i++)
+			members[fill[comp[i]]++] = i;
+		
+		BitSet[] reach = new BitSet[count];
+		for (int c = 0; c < count; c++) {
+			reach[c] = new BitSet(c + 1);
+			reach[c].set(c);
+			for (int k = start[c]; k < start[c + 1]; k++) {
+				for (Edge e : graphData.get(members[k])) {
+					int d = comp[e.getEnd()];
+					if (!reach[c].get(d)) 		// Once d is in the set, everything d reaches already is too
+						reach[c].or(reach[d]);
+				}
+			}
+		}
+		
+		component = comp;
+		reachableComponents = reach;
+	}
+	
+	
+	/**
+	 * isReachable: checks in O(1) whether any path at all leads from one city to another, using the component index.
+	 * Closing a road with an infinite weight does not change the index, so it may still answer true for such pairs,
+	 * but it never answers false for a pair that has a path.
+	 * @param startID the start city
+	 * @param endID the destination city
+	 */
+	public boolean isReachable(int startID, int endID) {
+		graphLock.readLock().lock();
+		try {
+			int from = indexOf(startID);
+			int to = indexOf(endID);
+			
+			/* No index, or cities loaded since it was built: cannot rule a path out */
+			if (component == null || from >= component.length || to >= component.length)
+				return true;
+			return reachableComponents[component[from]].get(component[to]);
+		} finally {
+			graphLock.readLock().unlock();
+		}
+	}
+	
+	
+	/**
+	 * getComponent: returns the number of the strongly connected component containing a city, or -1 if there is no
+	 * adjacency list yet. Components are numbered so that a component can only reach lower-numbered ones.
+	 */
+	public int getComponent(int id) {
+		graphLock.readLock().lock();
+		try {
+			int index = indexOf(id);
+			return (component == null || index >= component.length) ? -1 : component[index];
+		} finally {
+			graphLock.readLock().unlock();
+		}
+	}
+	
+	
+	/**
+	 * getComponentSizes: returns the number of cities in each strongly connected component, by component number
+	 */
+	public int[] getComponentSizes() {
+		graphLock.readLock().lock();
+		try {
+			if (component == null)
+				return new int[0];
+			int[] sizes = new int[reachableComponents.length];
+			for (int c : component)
+				sizes[c]++;
+			return sizes;
+		} finally {
+			graphLock.readLock().unlock();
+		}
+	}
+	
+	
+	/**
+	 * getEdge: finds the Edge from one Vertex to another in the adjacency list, by index
+	 * @return the Edge, or null if there is no Edge from ID1 to ID2
+	 */
+	private Edge getEdge(int ID1, int ID2) {
+		ArrayList<Edge> edges = graphData.get(ID1);
+		if (edges == null)
+			return null;
+		for (Edge e : edges) {
+			if (e.getEnd() == ID2)
+				return e;
+		}
+		return null;
+	}
+	
+	
+	/**
+	 * updateEdgeWeight: changes the weight of a single existing Edge (see updateEdgeWeights)
+	 * @return true if the Edge exists and was updated
+	 */
+	public boolean updateEdgeWeight(int ID1, int ID2, double weight) {
+		return updateEdgeWeights(Collections.singletonList(new Edge(ID1, ID2, weight))) == 1;
+	}
+	
+	
+	/**
+	 * updateEdgeWeights: applies a batch of live weight changes (congestion, closures) to existing Edges, then repairs
+	 * every cached shortest path tree incrementally instead of recomputing it (see readme for details)
+	 * @param updates Edges giving (start, end, new weight); a weight of Double.POSITIVE_INFINITY closes the road
+	 * @return the number of updates that matched an existing Edge; the rest are ignored
+	 */
+	public int updateEdgeWeights(Iterable<Edge> updates) {
+		lockForWrite();
+		try {
+			
+			/* Check the whole batch first, so that a bad weight leaves every Edge as it was */
+			ArrayList<Edge> batch = new ArrayList<Edge>();
+			for (Edge u : updates) {
+				if (Double.isNaN(u.getWeight()) || u.getWeight() < 0)
+					throw new IllegalArgumentException("Edge weights must be non-negative: " + u.getWeight());
+				batch.add(u);
+			}
+			
+			/* Remember each changed Edge's weight from before the batch, so repeated updates to one Edge count once */
+			Map<Edge, Double> oldWeights = new LinkedHashMap<Edge, Double>();
+			int applied = 0;
+			
+			for (Edge u : batch) {
+				Edge e = getEdge(indexOf(u.getStart()), indexOf(u.getEnd()));
+				if (e == null)
+					continue;
+				if (!oldWeights.containsKey(e))
+					oldWeights.put(e, e.getWeight());
+				e.setWeight(u.getWeight());
+				applied++;
+			}
+			
+			if (applied == 0)
+				return 0;
+			version++;
+			repairCachedTrees(oldWeights);
+			return applied;
+		} finally {
+			graphLock.writeLock().unlock();
+		}
+	}
+	
+	
+	/**
+	 * repairCachedTrees: replaces each cached tree with a repaired copy, so that readers holding the old one are
+	 * undisturbed; caller must hold the write lock
+	 * @param oldWeights each changed Edge mapped to its weight before the change (infinity for a new Edge)
+	 */
+	private void repairCachedTrees(Map<Edge, Double> oldWeights) {
+		synchronized (treeCache) {
+			for (Map.Entry<Integer, ShortestPathTree> entry : treeCache.entrySet())
+				entry.setValue(repairTree(entry.getValue(), oldWeights));
+		}
+	}
+	
+	
+	/**
+	 * shortestPathTree: returns the edge-weight shortest path tree from the given origin at the current graph version.
+	 * Trees for recently used origins are cached and kept up to date by updateEdgeWeights().
+	 * @param startID the origin city
+	 */
+	public ShortestPathTree shortestPathTree(int startID) {
+		graphLock.readLock().lock();
+		try {
+			int startIndex = indexOf(startID);
+			ShortestPathTree tree = treeCache.get(startIndex);
+			if (tree == null) {
+				tree = buildTree(startIndex);
+				treeCache.put(startIndex, tree);
+			}
+			return tree;
+		} finally {
+			graphLock.readLock().unlock();
+		}
+	}
+	
+	
+	/**
+	 * buildTree: Dijkstra's algorithm on edge weights into plain arrays, leaving the Vertices' own fields untouched
+	 * so that it can run while other readers hold the graph
+	 */
+	private ShortestPathTree buildTree(int startIndex) {
+		double[] dist = new double[size];
+		int[] parent = new int[size];
+		Arrays.fill(dist, Double.POSITIVE_INFINITY);
+		Arrays.fill(parent, -1);
+		
+		PriorityQueue<double[]> heap = new PriorityQueue<double[]>(16, BY_DISTANCE);
+		dist[startIndex] = 0;
+		heap.add(new double[] {0, startIndex});
+		settle(heap, dist, parent, null, false);
+		
+		return new ShortestPathTree(startIndex, version, dist, parent, toIndex, toID);
+	}
+	
+	
+	/**
+	 * settle: runs Dijkstra's algorithm from whatever entries are already in the heap, improving dist and parent, and
+	 * passing each Vertex's source on to the Vertices it improves. Either parent or source may be null if not wanted.
+	 * Heap entries are {distance, index}; an entry whose distance no longer matches dist is stale and skipped.
+	 */
+	private void settle(PriorityQueue<double[]> heap, double[] dist, int[] parent, int[] source, boolean gpsMode) {
+		while (!heap.isEmpty()) {
+			double[] top = heap.poll();
+			int id = (int)top[1];
+			if (top[0] > dist[id])
+				continue; 		// Already settled with a shorter distance
+			
+			for (Edge e : graphData.get(id)) {
+				double curDist = dist[id] + cost(e, gpsMode);
+				if (curDist < dist[e.getEnd()]) {
+					dist[e.getEnd()] = curDist;
+					if (parent != null)
+						parent[e.getEnd()] = id;
+					if (source != null)
+						source[e.getEnd()] = source[id];
+					heap.add(new double[] {curDist, e.getEnd()});
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * repairTree: updates a copy of a shortest path tree after a batch of weight changes (see readme for details).
+	 * Only the subtrees hanging off Edges that got heavier, and the Vertices that a lighter Edge improves, are revisited.
+	 * @param old the tree before the batch
+	 * @param oldWeights each changed Edge mapped to its weight before the batch
+	 */
+	private ShortestPathTree repairTree(ShortestPathTree old, Map<Edge, Double> oldWeights) {
+		ShortestPathTree tree = old.copy(version);
+		double[] dist = tree.distances();
+		int[] parent = tree.parents();
+		
+		/* Step 1: every Vertex below a heavier tree Edge may now be farther away, so forget its distance */
+		ArrayList<Integer> affected = new ArrayList<Integer>();
+		for (Map.Entry<Edge, Double> entry : oldWeights.entrySet()) {
+			Edge e = entry.getKey();
+			if (e.getWeight() > entry.getValue() && parent[e.getEnd()] == e.getStart()
+					&& dist[e.getEnd()] != Double.POSITIVE_INFINITY)
+				invalidateSubtree(e.getEnd(), dist, parent, affected);
+		}
+		
+		/* Step 2: give each forgotten Vertex its best distance through Edges from Vertices that are still valid */
+		PriorityQueue<double[]> heap = new PriorityQueue<double[]>(16, BY_DISTANCE);
+		for (int id : affected) {
+			for (Edge e : reverseData.get(id)) {
+				double curDist = dist[e.getStart()] + e.getWeight();
+				if (curDist < dist[id]) {
+					dist[id] = curDist;
+					parent[id] = e.getStart();
+				}
+			}
+			if (dist[id] != Double.POSITIVE_INFINITY)
+				heap.add(new double[] {dist[id], id});
+		}
+		
+		/* Step 3: a lighter Edge may offer a shorter way to its end Vertex */
+		for (Edge e : oldWeights.keySet()) {
+			double curDist = dist[e.getStart()] + e.getWeight();
+			if (curDist < dist[e.getEnd()]) {
+				dist[e.getEnd()] = curDist;
+				parent[e.getEnd()] = e.getStart();
+				heap.add(new double[] {curDist, e.getEnd()});
+			}
+		}
+		
+		/* Step 4: spread the changes outwards from the Vertices touched above */
+		settle(heap, dist, parent, null, false);
+		return tree;
+	}
+	
+	
+	/**
+	 * invalidateSubtree: resets every Vertex in the shortest path subtree rooted at the given Vertex to unreached,
+	 * walking only tree Edges, and collects them in affected
+	 */
+	private void invalidateSubtree(int rootID, double[] dist, int[] parent, ArrayList<Integer> affected) {
+		ArrayDeque<Integer> stack = new ArrayDeque<Integer>(); 	// Explicit stack; subtrees can be thousands deep
+		stack.push(rootID);
+		dist[rootID] = Double.POSITIVE_INFINITY;
+		
+		while (!stack.isEmpty()) {
+			int id = stack.pop();
+			affected.add(id);
+			for (Edge e : graphData.get(id)) {
+				int child = e.getEnd();
+				if (parent[child] == id && dist[child] != Double.POSITIVE_INFINITY) {
+					dist[child] = Double.POSITIVE_INFINITY;
+					stack.push(child);
+				}
+			}
+			parent[id] = -1;
+		}
 	}
 	
 	
@@ -351,10 +1111,18 @@ public class GPSGraph {
 	 * clearAll() Resets all info for new session
 	 */
 	public void clearAll() {
-		clearAdjList(); 			// Clears the adjacency list (resets counts and Edges)
-		lookup_vertex.clear(); 		// Clears all city info
-		fileTitles.clear(); 		// Clears list of seen files
-		size = 0; 					// Reset size
+		lockForWrite();
+		try {
+			clearAdjList(); 			// Clears the adjacency list (resets counts and Edges)
+			lookup_vertex.clear(); 		// Clears all city info
+			fileTitles.clear(); 		// Clears list of seen files
+			size = 0; 					// Reset size
+			toIndex = null; 			// Forget any renumbering
+			toID = null;
+			version++;
+		} finally {
+			graphLock.writeLock().unlock();
+		}
 	}
 	
 	/**
@@ -365,6 +1133,10 @@ public class GPSGraph {
 			lookup_vertex.get(i).clearCounts();
 		}
 		graphData.clear();
+		reverseData.clear();
+		treeCache.clear(); 		// Cached trees describe Edges that no longer exist
+		component = null;
+		reachableComponents = null;
 	}
 	
 	
@@ -375,6 +1147,10 @@ public class GPSGraph {
 		return size;
 	}
 	
+	public long getVersion() {
+		return version;
+	}
+	
 	public void setCurID(int id) {
 		curID = id;
 	}
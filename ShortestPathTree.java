@@ -0,0 +1,82 @@
+/**
+ * ShortestPathTree
+ * Dylan Kario
+ *
+ * This class holds a snapshot of the shortest distances and paths from one origin city to every other city in the
+ * custom graph DS GPSGraph, as of a given graph version. It is stored by index and answers by original city ID.
+ * Snapshots are never modified once handed out; when edge weights change, GPSGraph repairs a copy and swaps it in,
+ * so a reader always sees one consistent version.
+ */
+
+package gps;
+
+public class ShortestPathTree {
+
+	private int origin; 		// Index of the origin Vertex
+	private long version; 		// Graph version this tree reflects
+	private double[] dist; 		// Shortest distance from origin, by Vertex index
+	private int[] parent; 		// Index of previous Vertex on the shortest path, by Vertex index (-1 for origin/unreached)
+	private int[] toIndex; 		// GPSGraph's ID -> index map when this tree was built (null if never reordered)
+	private int[] toID; 		// GPSGraph's index -> ID map when this tree was built (null if never reordered)
+
+
+	ShortestPathTree(int o, long v, double[] d, int[] p, int[] in, int[] out) {
+		origin = o;
+		version = v;
+		dist = d;
+		parent = p;
+		toIndex = in;
+		toID = out;
+	}
+
+
+	/**
+	 * copy: returns a new tree with the same data, to be repaired without disturbing readers of this one
+	 * @param v graph version that the copy will reflect once repaired
+	 */
+	ShortestPathTree copy(long v) {
+		return new ShortestPathTree(origin, v, dist.clone(), parent.clone(), toIndex, toID);
+	}
+
+
+	/**
+	 * isReachable: checks whether the given Vertex can be reached from the origin at all
+	 */
+	public boolean isReachable(int id) {
+		return dist[GPSGraph.remap(toIndex, id)] != Double.POSITIVE_INFINITY;
+	}
+
+
+	/* Getters */
+
+	public int getOrigin() {
+		return GPSGraph.remap(toID, origin);
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public double getDistance(int id) {
+		return dist[GPSGraph.remap(toIndex, id)];
+	}
+
+	public int getPath(int id) {
+		return GPSGraph.remap(toID, parent[GPSGraph.remap(toIndex, id)]); 	// -1 is left as is
+	}
+
+	public int size() {
+		return dist.length;
+	}
+
+
+	/* Package-private access for GPSGraph's repair step */
+
+	double[] distances() {
+		return dist;
+	}
+
+	int[] parents() {
+		return parent;
+	}
+}
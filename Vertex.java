@@ -10,6 +10,7 @@ package gps;
 public class Vertex implements Comparable<Vertex> {
 	
 	private int ID; 			// Unique ID number for each Vertex; created sequentially when added to lookup table
+	private int index; 			// Position in GPSGraph's lookup table and adjacency list; equals ID unless reordered
 	private String city; 		// Name of the city 
 	private String state; 		// Name of the state
 	private double lon;	 		// Longitude
@@ -24,6 +25,7 @@ public class Vertex implements Comparable<Vertex> {
 	
 	public Vertex(int i, String c, String s, double lo, double la) {
 		ID = i;
+		index = i;
 		city = c;
 		state = s;
 		lon = lo;
@@ -35,6 +37,25 @@ public class Vertex implements Comparable<Vertex> {
 	}
 	
 	
+	/**
+	 * Vertex: copies another Vertex, including its counts, at a new index (used by GPSGraph when reordering, so that
+	 * the copies are allocated in their new order)
+	 */
+	Vertex(Vertex other, int i) {
+		ID = other.ID;
+		index = i;
+		city = other.city;
+		state = other.state;
+		lon = other.lon;
+		lat = other.lat;
+		outCount = other.outCount;
+		inCount = other.inCount;
+		path = other.path;
+		distance = other.distance;
+		known = other.known;
+	}
+	
+	
 	public void incInCount() {
 		inCount++;
 	}
@@ -57,6 +78,10 @@ public class Vertex implements Comparable<Vertex> {
 		return ID;
 	}
 	
+	public int getIndex() {
+		return index;
+	}
+	
 	public String getCity() {
 		return city;
 	}